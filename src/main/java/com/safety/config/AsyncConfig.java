@@ -6,7 +6,9 @@ import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
 
+import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.Executor;
+import java.util.concurrent.PriorityBlockingQueue;
 
 @Configuration
 @RequiredArgsConstructor
@@ -47,4 +49,37 @@ public class AsyncConfig {
         log.info("IO线程池已初始化: core={}, max={}", config.getCorePoolSize(), config.getMaxPoolSize());
         return executor;
     }
+
+
+    /**
+     * 配置LLM调用线程池
+     * 使用优先级队列按 priority/deadline 调度，仅接受 LLMInfrastructure.LlmTask；
+     * 队列长度以 queue-capacity 为上限，队列满后扩容至 max-pool-size，再满则拒绝并由调用方降级
+     */
+    @Bean(name = "llmExecutor")
+    public Executor llmExecutor() {
+        ContentGuardProperties.PoolConfig config = properties.getAsync().getLlm();
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor() {
+            @Override
+            protected BlockingQueue<Runnable> createQueue(int queueCapacity) {
+                if (queueCapacity <= 0) {
+                    throw new IllegalStateException("content-guard.async.llm.queue-capacity 必须大于 0");
+                }
+                // PriorityBlockingQueue 本身无界，这里在 offer 时限制长度
+                return new PriorityBlockingQueue<>() {
+                    @Override
+                    public synchronized boolean offer(Runnable task) {
+                        return size() < queueCapacity && super.offer(task);
+                    }
+                };
+            }
+        };
+        executor.setCorePoolSize(config.getCorePoolSize());
+        executor.setMaxPoolSize(config.getMaxPoolSize());
+        executor.setQueueCapacity(config.getQueueCapacity());
+        executor.setThreadNamePrefix(config.getPrefix());
+        executor.initialize();
+        log.info("LLM线程池已初始化: core={}, max={}", config.getCorePoolSize(), config.getMaxPoolSize());
+        return executor;
+    }
 }
\ No newline at end of file
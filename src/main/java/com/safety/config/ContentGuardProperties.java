@@ -23,6 +23,7 @@ public class ContentGuardProperties {
     public static class AsyncPool {
         private PoolConfig cpu = new PoolConfig();
         private PoolConfig io = new PoolConfig();
+        private PoolConfig llm = new PoolConfig();
     }
 
     @Data
@@ -53,6 +54,8 @@ public class ContentGuardProperties {
         private double temperature; // LLM 模型温度
         private int connectTimeoutSeconds; // LLM API 连接超时时间
         private int readTimeoutSeconds; // LLM API 读取超时时间
+        private boolean stream; // 是否以 SSE 流式调用，拿到 safe 结论即返回
+        private long minRoundTripMs; // 剩余时延预算低于该值时不再调用 LLM，直接兜底
         private List<String> apiKeys; // LLM API 密钥
         private RateLimit rateLimit = new RateLimit(); // LLM API 速率限制
     }
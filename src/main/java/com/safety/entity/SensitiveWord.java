@@ -15,7 +15,7 @@ public class SensitiveWord {
     private String word;
 
     /**
-     * 敏感词类型，HIGH_RISK, AMBIGUOUS
+     * 敏感词类型，HIGH_RISK, AMBIGUOUS, EXEMPT(豁免词，抵消其覆盖的短词命中)
      */
     private String type;
 
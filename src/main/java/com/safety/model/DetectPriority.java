@@ -0,0 +1,10 @@
+package com.safety.model;
+
+/**
+ * 检测请求调度优先级，LLM 排队时 HIGH 优先出队
+ */
+public enum DetectPriority {
+    HIGH,
+    NORMAL,
+    LOW
+}
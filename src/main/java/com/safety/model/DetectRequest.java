@@ -14,4 +14,12 @@ public class DetectRequest {
     private RiskLevel riskLevel;
     private String title;
     private String fullContent;
+    /**
+     * 调用方可接受的时延预算 (ms)，为空时取 LLM 连接超时与读取超时之和，且不超过 MVC 异步请求超时
+     */
+    private Long latencyBudgetMs;
+    /**
+     * 调度优先级，为空时按 riskLevel 推导
+     */
+    private DetectPriority priority;
 }
@@ -10,8 +10,12 @@ import org.ahocorasick.trie.Trie;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.stream.Collectors;
 
 @Service
@@ -21,8 +25,11 @@ public class AcAutomatonService {
 
     private final SensitiveWordRepository repository; // 敏感词库
 
-    private volatile Trie highRiskTrie; // 高危敏感词
-    private volatile Trie ambiguousTrie; // 歧义词
+    private volatile KeywordMatcher highRiskMatcher; // 高危敏感词 + 豁免词
+    private volatile KeywordMatcher ambiguousMatcher; // 歧义词 + 豁免词
+
+    private final AtomicLong highRiskSuppressed = new AtomicLong(0); // 本刷新周期内被豁免词抵消的高风险命中数
+    private final AtomicLong ambiguousSuppressed = new AtomicLong(0); // 本刷新周期内被豁免词抵消的歧义命中数
 
     @PostConstruct
     public void init() {
@@ -49,37 +56,101 @@ public class AcAutomatonService {
                     .map(SensitiveWord::getWord)
                     .collect(Collectors.toList());
 
-            if (!highRiskKeywords.isEmpty()) {
-                this.highRiskTrie = Trie.builder().addKeywords(highRiskKeywords).build();
-            } else {
-                this.highRiskTrie = Trie.builder().addKeyword("EMPTY_HOLDER").build();
-            }
+            Set<String> exemptions = allWords.stream()
+                    .filter(w -> "EXEMPT".equals(w.getType()))
+                    .map(SensitiveWord::getWord)
+                    .collect(Collectors.toSet());
 
-            if (!ambiguousKeywords.isEmpty()) {
-                this.ambiguousTrie = Trie.builder().addKeywords(ambiguousKeywords).build();
-            } else {
-                this.ambiguousTrie = Trie.builder().addKeyword("EMPTY_HOLDER").build();
-            }
+            // 豁免词与敏感词编入同一个自动机，一次扫描同时得到两类命中
+            this.highRiskMatcher = buildMatcher(highRiskKeywords, exemptions);
+            this.ambiguousMatcher = buildMatcher(ambiguousKeywords, exemptions);
 
-            log.info("词库刷新完成. 高风险词: {}, 歧义词: {}", highRiskKeywords.size(), ambiguousKeywords.size());
+            log.info("词库刷新完成. 高风险词: {}, 歧义词: {}, 豁免词: {}. 本周期豁免抵消: 高风险 {}, 歧义 {}",
+                    highRiskKeywords.size(), ambiguousKeywords.size(), exemptions.size(),
+                    highRiskSuppressed.getAndSet(0), ambiguousSuppressed.getAndSet(0));
         } catch (Exception e) {
             log.error("词库刷新失败", e);
         }
     }
 
+    private KeywordMatcher buildMatcher(List<String> keywords, Set<String> exemptions) {
+        if (keywords.isEmpty()) {
+            return new KeywordMatcher(Trie.builder().addKeyword("EMPTY_HOLDER").build(), Set.of());
+        }
+        // 同时配置为敏感词的豁免词不生效，避免敏感词自身被抵消
+        Set<String> keywordSet = new HashSet<>(keywords);
+        Set<String> effectiveExemptions = exemptions.stream()
+                .filter(e -> !keywordSet.contains(e))
+                .collect(Collectors.toSet());
+        return new KeywordMatcher(
+                Trie.builder().addKeywords(keywords).addKeywords(effectiveExemptions).build(),
+                effectiveExemptions);
+    }
+
     /**
      * 检查高风险敏感词
      */
     public Collection<Emit> checkHighRisk(String text) {
-        if (highRiskTrie == null) return List.of();
-        return highRiskTrie.parseText(text);
+        KeywordMatcher matcher = highRiskMatcher;
+        if (matcher == null) return List.of();
+        return filterExempted(matcher, text, highRiskSuppressed);
     }
 
     /**
      * 检查歧义词
      */
     public Collection<Emit> checkAmbiguous(String text) {
-        if (ambiguousTrie == null) return List.of();
-        return ambiguousTrie.parseText(text);
+        KeywordMatcher matcher = ambiguousMatcher;
+        if (matcher == null) return List.of();
+        return filterExempted(matcher, text, ambiguousSuppressed);
+    }
+
+    /**
+     * 按偏移量做最长匹配：敏感词命中区间被更长的豁免词命中区间完整包含时，该命中被抵消
+     * 例如 "政治课" 抵消其中的 "政治"
+     */
+    private Collection<Emit> filterExempted(KeywordMatcher matcher, String text, AtomicLong suppressedCounter) {
+        Collection<Emit> emits = matcher.trie().parseText(text);
+        Set<String> exemptions = matcher.exemptions();
+        if (exemptions.isEmpty() || emits.isEmpty()) return emits;
+
+        List<Emit> exemptEmits = new ArrayList<>();
+        List<Emit> keywordEmits = new ArrayList<>();
+        for (Emit emit : emits) {
+            if (exemptions.contains(emit.getKeyword())) {
+                exemptEmits.add(emit);
+            } else {
+                keywordEmits.add(emit);
+            }
+        }
+        if (exemptEmits.isEmpty()) return keywordEmits;
+
+        List<Emit> result = new ArrayList<>(keywordEmits.size());
+        for (Emit emit : keywordEmits) {
+            if (isExempted(emit, exemptEmits)) {
+                suppressedCounter.incrementAndGet();
+                log.debug("敏感词 {} 被豁免词抵消, 位置 [{}, {}]", emit.getKeyword(), emit.getStart(), emit.getEnd());
+            } else {
+                result.add(emit);
+            }
+        }
+        return result;
+    }
+
+    private boolean isExempted(Emit emit, List<Emit> exemptEmits) {
+        for (Emit exempt : exemptEmits) {
+            // 仅重叠不抵消，防止豁免词吞掉相邻的敏感词 (如 "政治经济学潮" 中的 "学潮")
+            if (exempt.getStart() <= emit.getStart() && exempt.getEnd() >= emit.getEnd()
+                    && exempt.size() > emit.size()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 自动机与其豁免词集合一同发布，保证热更新期间二者一致
+     */
+    private record KeywordMatcher(Trie trie, Set<String> exemptions) {
     }
 }
\ No newline at end of file
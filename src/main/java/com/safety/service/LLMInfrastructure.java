@@ -1,14 +1,18 @@
 package com.safety.service;
 
 import com.alibaba.fastjson2.JSON;
+import com.alibaba.fastjson2.JSONArray;
+import com.alibaba.fastjson2.JSONException;
 import com.alibaba.fastjson2.JSONObject;
 import com.safety.config.ContentGuardProperties;
+import com.safety.model.DetectPriority;
 import jakarta.annotation.PostConstruct;
 import lombok.AllArgsConstructor;
 import lombok.Data;
-import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import okhttp3.*;
+import okio.BufferedSource;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.data.redis.core.StringRedisTemplate;
 import org.springframework.stereotype.Service;
 
@@ -17,18 +21,30 @@ import java.time.Duration;
 import java.util.Arrays;
 import java.util.List;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 @Service
 @Slf4j
-@RequiredArgsConstructor
 public class LLMInfrastructure {
 
     private final StringRedisTemplate redisTemplate; // Redis 缓存
     private final ContentGuardProperties properties;
+    private final Executor llmExecutor; // 按优先级/截止时间调度的 LLM 线程池
     private OkHttpClient httpClient;
     private final AtomicInteger accountIndex = new AtomicInteger(0); // API 账号索引
+    private final AtomicLong taskSequence = new AtomicLong(0); // 同优先级同截止时间时保持 FIFO
+
+    public LLMInfrastructure(StringRedisTemplate redisTemplate,
+                             ContentGuardProperties properties,
+                             @Qualifier("llmExecutor") Executor llmExecutor) {
+        this.redisTemplate = redisTemplate;
+        this.properties = properties;
+        this.llmExecutor = llmExecutor;
+    }
 
     @PostConstruct
     public void init() {
@@ -83,19 +99,20 @@ public class LLMInfrastructure {
 
     /**
      * 异步调用 LLM API 进行内容分析
+     * 请求按 priority、deadline 排队；调用方放弃（Future 被提前完成）后，排队中的任务跳过，进行中的请求被取消
+     *
+     * @param deadline 截止时间戳 (ms)
      */
-    public CompletableFuture<LLMResult> analyzeAsync(String text, String context) {
-        if (!tryAcquireRateLimit()) {
-            log.warn("LLM API触发限流，进入降级逻辑");
-            return CompletableFuture.failedFuture(new RuntimeException("RATE_LIMIT_EXCEEDED"));
-        }
-
+    public CompletableFuture<LLMResult> analyzeAsync(String text, String context, DetectPriority priority, long deadline) {
         String apiKey = rotateAccount();
         ContentGuardProperties.LlmConfig llmConfig = properties.getLlm();
 
         JSONObject requestBody = new JSONObject();
         requestBody.put("model", llmConfig.getModel());
         requestBody.put("temperature", llmConfig.getTemperature());
+        if (llmConfig.isStream()) {
+            requestBody.put("stream", true);
+        }
 
         // Prompt
         JSONObject systemMsg = new JSONObject();
@@ -123,19 +140,153 @@ public class LLMInfrastructure {
                 .post(RequestBody.create(requestBody.toJSONString(), MediaType.get("application/json")))
                 .build();
 
-        return CompletableFuture.supplyAsync(() -> {
-            try (Response response = httpClient.newCall(request).execute()) {
-                if (!response.isSuccessful()) {
-                    String body = response.body() != null ? response.body().string() : "";
-                    log.error("LLM Provider Error [{}]: code={}, body={}", llmConfig.getModel(), response.code(), body);
-                    throw new RuntimeException("LLM_API_ERROR_" + response.code());
-                }
-                return parseLlmResponse(response.body().string());
-            } catch (IOException e) {
+        CompletableFuture<LLMResult> future = new CompletableFuture<>();
+        try {
+            llmExecutor.execute(new LlmTask(priority, deadline, taskSequence.getAndIncrement(),
+                    () -> execute(request, llmConfig, deadline, future)));
+        } catch (RejectedExecutionException e) {
+            log.warn("LLM 任务队列已满，进入降级逻辑");
+            future.completeExceptionally(new RuntimeException("QUEUE_FULL"));
+        }
+        return future;
+    }
+
+
+    /**
+     * 在 LLM 线程池中实际执行调用
+     * 任何运行时异常（如 Redis 限流不可用）都转为 Future 异常完成，保证调用方立即降级且不损耗工作线程
+     */
+    private void execute(Request request, ContentGuardProperties.LlmConfig llmConfig, long deadline,
+                         CompletableFuture<LLMResult> future) {
+        try {
+            doExecute(request, llmConfig, deadline, future);
+        } catch (RuntimeException e) {
+            log.error("LLM 任务执行异常 [{}]: {}", llmConfig.getModel(), e.toString());
+            future.completeExceptionally(e);
+        }
+    }
+
+
+    private void doExecute(Request request, ContentGuardProperties.LlmConfig llmConfig, long deadline,
+                           CompletableFuture<LLMResult> future) {
+        if (future.isDone()) {
+            log.debug("调用方已放弃，跳过排队中的 LLM 请求");
+            return;
+        }
+        if (deadline - System.currentTimeMillis() < llmConfig.getMinRoundTripMs()) {
+            log.warn("LLM 请求出队时剩余时延预算不足，进入降级逻辑");
+            future.completeExceptionally(new RuntimeException("DEADLINE_EXCEEDED"));
+            return;
+        }
+        if (!tryAcquireRateLimit()) {
+            log.warn("LLM API触发限流，进入降级逻辑");
+            future.completeExceptionally(new RuntimeException("RATE_LIMIT_EXCEEDED"));
+            return;
+        }
+
+        Call call = httpClient.newCall(request);
+        // 调用方超时或放弃后，取消进行中的 HTTP 请求
+        future.whenComplete((result, ex) -> {
+            if (ex != null) call.cancel();
+        });
+
+        if (llmConfig.isStream()) {
+            executeStream(call, llmConfig, future);
+            return;
+        }
+
+        try (Response response = call.execute()) {
+            if (!response.isSuccessful()) {
+                String body = response.body() != null ? response.body().string() : "";
+                log.error("LLM Provider Error [{}]: code={}, body={}", llmConfig.getModel(), response.code(), body);
+                future.completeExceptionally(new RuntimeException("LLM_API_ERROR_" + response.code()));
+                return;
+            }
+            future.complete(parseLlmResponse(response.body().string()));
+        } catch (IOException e) {
+            if (!call.isCanceled()) {
                 log.error("LLM 网络请求异常 [{}]: {}", llmConfig.getModel(), e.getMessage());
-                throw new RuntimeException("NETWORK_ERROR", e);
             }
-        });
+            future.completeExceptionally(new RuntimeException("NETWORK_ERROR", e));
+        }
+    }
+
+
+    /**
+     * 以 SSE 流式方式读取 LLM API 响应
+     * 一旦增量内容中出现 safe 字段即提前完成 Future；
+     * 判定安全时立即关闭连接释放线程，判定违规时继续读完流以补全 type/snippet 并记录日志
+     */
+    private void executeStream(Call call, ContentGuardProperties.LlmConfig llmConfig, CompletableFuture<LLMResult> future) {
+        StringBuilder content = new StringBuilder();
+        SafeVerdictScanner scanner = new SafeVerdictScanner();
+        try (Response response = call.execute()) {
+            if (!response.isSuccessful()) {
+                String body = response.body() != null ? response.body().string() : "";
+                log.error("LLM Provider Error [{}]: code={}, body={}", llmConfig.getModel(), response.code(), body);
+                future.completeExceptionally(new RuntimeException("LLM_API_ERROR_" + response.code()));
+                return;
+            }
+
+            BufferedSource source = response.body().source();
+            String line;
+            while ((line = source.readUtf8Line()) != null) {
+                // SSE 数据行格式: "data: {...}"，以 "data: [DONE]" 结束
+                if (!line.startsWith("data:")) continue;
+                String data = line.substring(5).trim();
+                if ("[DONE]".equals(data)) break;
+
+                String delta = parseStreamDelta(data);
+                if (delta == null || delta.isEmpty()) continue;
+                content.append(delta);
+
+                if (!future.isDone()) {
+                    Boolean safe = scanner.feed(delta);
+                    if (safe != null) {
+                        future.complete(new LLMResult(safe, null, null));
+                        if (safe) {
+                            call.cancel();
+                            return;
+                        }
+                    }
+                }
+            }
+
+            LLMResult fullResult = parseResultContent(content.toString());
+            if (!future.complete(fullResult)) {
+                log.info("LLM 流式研判明细 [{}]: safe={}, type={}, snippet={}",
+                        llmConfig.getModel(), fullResult.isSafe(), fullResult.getType(), fullResult.getSnippet());
+            }
+        } catch (IOException e) {
+            if (!call.isCanceled()) {
+                log.error("LLM 流式网络请求异常 [{}]: {}", llmConfig.getModel(), e.getMessage());
+            }
+            future.completeExceptionally(new RuntimeException("NETWORK_ERROR", e));
+        } catch (Exception e) {
+            // 若已提前拿到结论，明细解析失败只影响日志
+            log.error("LLM 流式响应解析失败. Raw Content: {}", content, e);
+            future.completeExceptionally(new RuntimeException("PARSE_ERROR"));
+        }
+    }
+
+
+    /**
+     * 解析单个 SSE 数据块，返回增量文本；空数据或无法解析的数据块直接忽略
+     */
+    private String parseStreamDelta(String data) {
+        if (data.isEmpty()) return null;
+        JSONObject chunk;
+        try {
+            chunk = JSON.parseObject(data);
+        } catch (JSONException e) {
+            log.debug("忽略无法解析的 SSE 数据块: {}", data);
+            return null;
+        }
+        if (chunk == null) return null;
+        JSONArray choices = chunk.getJSONArray("choices");
+        if (choices == null || choices.isEmpty()) return null;
+        JSONObject delta = choices.getJSONObject(0).getJSONObject("delta");
+        return delta != null ? delta.getString("content") : null;
     }
 
 
@@ -152,19 +303,7 @@ public class LLMInfrastructure {
                     .getJSONObject("message")
                     .getString("content");
 
-            // 清洗 Markdown 代码块标记 (DeepSeek/Qwen 可能会输出 ```json ... ```)
-            if (content.contains("```")) {
-                content = content.replaceAll("```json", "").replaceAll("```", "");
-            }
-            content = content.trim();
-
-            JSONObject resultJson = JSON.parseObject(content);
-
-            return new LLMResult(
-                    resultJson.getBooleanValue("safe"),
-                    resultJson.getString("type"),
-                    resultJson.getString("snippet")
-            );
+            return parseResultContent(content);
         } catch (Exception e) {
             log.error("LLM 响应解析失败. Raw Response: {}", jsonStr, e);
             throw new RuntimeException("PARSE_ERROR");
@@ -172,6 +311,166 @@ public class LLMInfrastructure {
     }
 
 
+    /**
+     * 解析模型输出的结论 JSON
+     */
+    private LLMResult parseResultContent(String content) {
+        JSONObject resultJson = JSON.parseObject(stripMarkdownFence(content));
+        return new LLMResult(
+                resultJson.getBooleanValue("safe"),
+                resultJson.getString("type"),
+                resultJson.getString("snippet")
+        );
+    }
+
+
+    /**
+     * 清洗 Markdown 代码块标记 (DeepSeek/Qwen 可能会输出 ```json ... ```)
+     * 直接截取首尾花括号之间的内容，避免正则替换
+     */
+    private String stripMarkdownFence(String content) {
+        int start = content.indexOf('{');
+        int end = content.lastIndexOf('}');
+        if (start < 0 || end < start) {
+            return content.trim();
+        }
+        return content.substring(start, end + 1);
+    }
+
+
+    /**
+     * 增量扫描流式输出，提取最外层 JSON 对象的顶层 safe 字段
+     * 每个字符只处理一次，JSON 之前的文本（如 Markdown 标记）及嵌套对象中的 safe 均被忽略
+     */
+    private static class SafeVerdictScanner {
+        private int depth; // 当前嵌套深度，0 表示尚未进入最外层对象
+        private boolean finished; // 最外层对象已结束
+        private boolean inString;
+        private boolean escaped;
+        private boolean expectKey; // 顶层处于等待 key 的位置
+        private boolean collectingKey;
+        private final StringBuilder key = new StringBuilder();
+        private String lastKey; // 最近一个顶层 key
+        private StringBuilder literal; // 正在读取的 safe 值
+        private Boolean verdict;
+
+        /**
+         * 输入一段增量文本，结论确定后返回 true/false，否则返回 null
+         */
+        Boolean feed(CharSequence delta) {
+            for (int i = 0; i < delta.length() && verdict == null && !finished; i++) {
+                accept(delta.charAt(i));
+            }
+            return verdict;
+        }
+
+        private void accept(char c) {
+            if (depth == 0) {
+                if (c == '{') {
+                    depth = 1;
+                    expectKey = true;
+                }
+                return;
+            }
+
+            if (literal != null) {
+                if (literal.length() == 0 && Character.isWhitespace(c)) return;
+                if (Character.isLetter(c)) {
+                    literal.append(c);
+                    String value = literal.toString();
+                    if ("true".equals(value)) {
+                        verdict = Boolean.TRUE;
+                    } else if ("false".equals(value)) {
+                        verdict = Boolean.FALSE;
+                    } else if (!"true".startsWith(value) && !"false".startsWith(value)) {
+                        literal = null;
+                    }
+                    return;
+                }
+                // 非布尔字面量，交由流结束后的完整解析处理
+                literal = null;
+            }
+
+            if (inString) {
+                if (escaped) {
+                    escaped = false;
+                } else if (c == '\\') {
+                    escaped = true;
+                    return;
+                } else if (c == '"') {
+                    inString = false;
+                    if (collectingKey) {
+                        lastKey = key.toString();
+                        collectingKey = false;
+                    }
+                    return;
+                }
+                if (collectingKey) key.append(c);
+                return;
+            }
+
+            switch (c) {
+                case '"' -> {
+                    inString = true;
+                    collectingKey = depth == 1 && expectKey;
+                    if (collectingKey) key.setLength(0);
+                }
+                case ':' -> {
+                    if (depth == 1) {
+                        expectKey = false;
+                        if ("safe".equals(lastKey)) literal = new StringBuilder();
+                    }
+                }
+                case ',' -> {
+                    if (depth == 1) {
+                        expectKey = true;
+                        lastKey = null;
+                    }
+                }
+                case '{', '[' -> depth++;
+                case '}', ']' -> {
+                    depth--;
+                    if (depth == 0) finished = true;
+                }
+                default -> {
+                }
+            }
+        }
+    }
+
+
+    /**
+     * 可排序的 LLM 任务：优先级高者先出队，同优先级按截止时间先后，再按提交顺序
+     */
+    static class LlmTask implements Runnable, Comparable<LlmTask> {
+        private final DetectPriority priority;
+        private final long deadline;
+        private final long sequence;
+        private final Runnable body;
+
+        LlmTask(DetectPriority priority, long deadline, long sequence, Runnable body) {
+            this.priority = priority;
+            this.deadline = deadline;
+            this.sequence = sequence;
+            this.body = body;
+        }
+
+        @Override
+        public void run() {
+            body.run();
+        }
+
+        @Override
+        public int compareTo(LlmTask other) {
+            int cmp = Integer.compare(priority.ordinal(), other.priority.ordinal());
+            if (cmp != 0) return cmp;
+            cmp = Long.compare(deadline, other.deadline);
+            if (cmp != 0) return cmp;
+            return Long.compare(sequence, other.sequence);
+        }
+    }
+
+
     /**
      * LLM API 响应数据结构
      */
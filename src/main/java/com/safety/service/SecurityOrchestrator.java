@@ -1,5 +1,7 @@
 package com.safety.service;
 
+import com.safety.config.ContentGuardProperties;
+import com.safety.model.DetectPriority;
 import com.safety.model.DetectRequest;
 import com.safety.model.DetectResponse;
 import com.safety.model.RiskLevel;
@@ -7,12 +9,15 @@ import com.safety.model.RiskReason;
 import lombok.extern.slf4j.Slf4j;
 import org.ahocorasick.trie.Emit;
 import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
+import java.time.Duration;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
 
 @Service
 @Slf4j
@@ -20,19 +25,25 @@ public class SecurityOrchestrator {
     private final AcAutomatonService acService;
     private final LLMInfrastructure llmInfrastructure;
     private final TextProcessingService textProcessingService;
+    private final ContentGuardProperties properties;
     private final Executor ioExecutor;
     private final Executor cpuExecutor;
+    private final Duration asyncRequestTimeout; // Spring MVC 异步请求超时，超过后调用方已收到超时响应
 
     public SecurityOrchestrator(AcAutomatonService acService,
                                 LLMInfrastructure llmInfrastructure,
                                 TextProcessingService textProcessingService,
+                                ContentGuardProperties properties,
                                 @Qualifier("ioExecutor") Executor ioExecutor,
-                                @Qualifier("cpuExecutor") Executor cpuExecutor) {
+                                @Qualifier("cpuExecutor") Executor cpuExecutor,
+                                @Value("${spring.mvc.async.request-timeout:30s}") Duration asyncRequestTimeout) {
         this.acService = acService;
         this.llmInfrastructure = llmInfrastructure;
         this.textProcessingService = textProcessingService;
+        this.properties = properties;
         this.ioExecutor = ioExecutor;
         this.cpuExecutor = cpuExecutor;
+        this.asyncRequestTimeout = asyncRequestTimeout;
     }
 
     public CompletableFuture<DetectResponse> checkContent(DetectRequest request) {
@@ -47,8 +58,11 @@ public class SecurityOrchestrator {
             );
         }
 
+        // 调用方放弃（返回的 Future 被取消或完成）时由此通知下游取消 LLM 调用
+        CompletableFuture<Void> abandoned = new CompletableFuture<>();
+
         // 2. AC 初筛
-        return CompletableFuture.supplyAsync(() -> {
+        CompletableFuture<DetectResponse> result = CompletableFuture.supplyAsync(() -> {
             Collection<Emit> highRiskEmits = acService.checkHighRisk(request.getFullContent());
             if (!highRiskEmits.isEmpty()) {
                 Emit first = highRiskEmits.iterator().next();
@@ -65,14 +79,14 @@ public class SecurityOrchestrator {
                 log.info("用户 {} 命中歧义词，透传 LLM", request.getUserId());
                 // 使用注入的 textProcessingService
                 String contextText = textProcessingService.extractSample(request.getTitle(), request.getFullContent());
-                return callLlmWithFallback(contextText, request, "Ambiguous-Check", startTime, true);
+                return callLlmWithFallback(contextText, request, "Ambiguous-Check", startTime, true, abandoned);
             } else {
                 if (request.getRiskLevel() == RiskLevel.LOW) {
                     return CompletableFuture.completedFuture(
                             buildResponse(request.getUserId(), true, null, null, "Quick-Pass", startTime)
                     );
                 } else {
-                    return dispatchDeepScan(request, startTime);
+                    return dispatchDeepScan(request, startTime, abandoned);
                 }
             }
 
@@ -86,25 +100,48 @@ public class SecurityOrchestrator {
             log.error("用户 {} 检测过程发生系统异常", request.getUserId(), ex);
             return buildResponse(request.getUserId(), false, "SYSTEM_ERROR", "Internal Error", "Error", startTime);
         });
+
+        result.whenComplete((response, ex) -> abandoned.complete(null));
+        return result;
     }
 
-    private CompletableFuture<DetectResponse> dispatchDeepScan(DetectRequest request, long startTime) {
+    private CompletableFuture<DetectResponse> dispatchDeepScan(DetectRequest request, long startTime, CompletableFuture<Void> abandoned) {
         String strategy = "Sampling-Scan";
         // 使用注入的 Service 处理文本
         String textToSend = textProcessingService.extractSample(request.getTitle(), request.getFullContent());
-        return callLlmWithFallback(textToSend, request, strategy, startTime, false);
+        return callLlmWithFallback(textToSend, request, strategy, startTime, false, abandoned);
     }
 
-    private CompletableFuture<DetectResponse> callLlmWithFallback(String text, DetectRequest req, String strategy, long startTime, boolean wasAmbiguous) {
-        return llmInfrastructure.analyzeAsync(text, req.getTitle())
+    private CompletableFuture<DetectResponse> callLlmWithFallback(String text, DetectRequest req, String strategy, long startTime,
+                                                                  boolean wasAmbiguous, CompletableFuture<Void> abandoned) {
+        long deadline = resolveDeadline(req, startTime);
+        long remaining = deadline - System.currentTimeMillis();
+
+        CompletableFuture<LLMInfrastructure.LLMResult> llmFuture;
+        if (remaining < properties.getLlm().getMinRoundTripMs()) {
+            // 剩余预算不足一次 LLM 往返，调用已无法影响结果
+            log.info("用户 {} 剩余时延预算 {}ms 不足，跳过 LLM", req.getUserId(), remaining);
+            llmFuture = CompletableFuture.failedFuture(new RuntimeException("DEADLINE_EXCEEDED"));
+        } else {
+            llmFuture = llmInfrastructure.analyzeAsync(text, req.getTitle(), resolvePriority(req), deadline);
+            // 超时后 Future 异常完成，LLMInfrastructure 据此取消排队或进行中的调用
+            llmFuture.orTimeout(remaining, TimeUnit.MILLISECONDS);
+            // 调用方放弃后取消 llmFuture；已完成时为空操作
+            CompletableFuture<LLMInfrastructure.LLMResult> pending = llmFuture;
+            abandoned.whenComplete((v, ex) -> pending.cancel(false));
+        }
+
+        return llmFuture
                 .handleAsync((result, ex) -> {
                     if (ex == null && result != null) {
+                        // 流式模式下结论可能先于 type 返回
+                        String type = result.getType() != null ? result.getType() : "UNKNOWN";
                         return buildResponse(req.getUserId(), result.isSafe(),
-                                result.isSafe() ? null : "LLM_DETECTED_" + result.getType(),
+                                result.isSafe() ? null : "LLM_DETECTED_" + type,
                                 result.getSnippet(), strategy, startTime);
                     }
 
-                    log.error("用户 {} LLM 调用失败，触发兜底。Cause: {}", req.getUserId(), ex != null ? ex.getMessage() : "Unknown");
+                    log.error("用户 {} LLM 调用失败，触发兜底。Cause: {}", req.getUserId(), ex != null ? ex.toString() : "Unknown");
 
                     if (wasAmbiguous) {
                         return buildResponse(req.getUserId(), false, "FALLBACK_BLOCK", "Ambiguous hit & LLM failed", "Fallback-Strict", startTime);
@@ -114,6 +151,29 @@ public class SecurityOrchestrator {
                 }, ioExecutor);
     }
 
+    /**
+     * 未携带时延预算的请求以 LLM 连接+读取超时作为默认预算，避免低优先级任务在队列中无限等待；
+     * 所有预算均不超过 MVC 异步请求超时，超时后调用方已放弃
+     */
+    private long resolveDeadline(DetectRequest req, long startTime) {
+        Long budget = req.getLatencyBudgetMs();
+        if (budget == null || budget <= 0) {
+            ContentGuardProperties.LlmConfig llmConfig = properties.getLlm();
+            budget = TimeUnit.SECONDS.toMillis(llmConfig.getConnectTimeoutSeconds() + llmConfig.getReadTimeoutSeconds());
+        }
+        return startTime + Math.min(budget, asyncRequestTimeout.toMillis());
+    }
+
+    private DetectPriority resolvePriority(DetectRequest req) {
+        if (req.getPriority() != null) {
+            return req.getPriority();
+        }
+        if (req.getRiskLevel() == RiskLevel.HIGH) {
+            return DetectPriority.HIGH;
+        }
+        return req.getRiskLevel() == RiskLevel.LOW ? DetectPriority.LOW : DetectPriority.NORMAL;
+    }
+
     private DetectResponse buildResponse(String uid, boolean safe, String type, String snippet, String strategy, long start) {
         DetectResponse.DetectResponseBuilder builder = DetectResponse.builder()
                 .userId(uid)
@@ -7,7 +7,7 @@ USE safe_detection;
 CREATE TABLE `sensitive_words` (
                                    `id` bigint(20) NOT NULL AUTO_INCREMENT,
                                    `word` varchar(255) NOT NULL COMMENT '敏感词内容',
-                                   `type` varchar(50) NOT NULL COMMENT '类型: HIGH_RISK(高确信度), AMBIGUOUS(歧义/低风险)',
+                                   `type` varchar(50) NOT NULL COMMENT '类型: HIGH_RISK(高确信度), AMBIGUOUS(歧义/低风险), EXEMPT(豁免词)',
                                    `status` int(11) DEFAULT 1 COMMENT '状态: 1-启用, 0-禁用',
                                    `created_at` datetime DEFAULT CURRENT_TIMESTAMP,
                                    PRIMARY KEY (`id`),
@@ -27,4 +27,10 @@ INSERT INTO `sensitive_words` (`word`, `type`, `status`) VALUES
 INSERT INTO `sensitive_words` (`word`, `type`, `status`) VALUES
                                                              ('兼职', 'AMBIGUOUS', 1),
                                                              ('约茶', 'AMBIGUOUS', 1),
-                                                             ('刷单', 'AMBIGUOUS', 1);
\ No newline at end of file
+                                                             ('刷单', 'AMBIGUOUS', 1);
+
+INSERT INTO `sensitive_words` (`word`, `type`, `status`) VALUES
+                                                             ('政治课', 'EXEMPT', 1),
+                                                             ('政治经济学', 'EXEMPT', 1),
+                                                             ('兼职教师', 'EXEMPT', 1),
+                                                             ('兼职招聘会', 'EXEMPT', 1);